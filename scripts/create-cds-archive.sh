@@ -0,0 +1,31 @@
+#!/bin/sh
+# Builds build/wordcounter.jar and an AppCDS archive of the classes that
+# QuickWordCounter loads, so later runs map them in instead of loading and
+# verifying them one by one. An archive only works with the JVM that created
+# it, so rerun this script after changing Java version. Needs JDK 13 or later.
+#
+# Usage: scripts/create-cds-archive.sh [training-file]
+set -e
+cd "$(dirname "$0")/.."
+
+rm -rf build/classes
+mkdir -p build/classes
+javac -d build/classes $(find src/wordCounter -name '*.java')
+jar cf build/wordcounter.jar -C build/classes .
+
+training=${1:-build/training.txt}
+if [ ! -f "$training" ]; then
+    # Exercises every tokenizer path: case, digits, punctuation, ' and -
+    cat > "$training" <<'TEXT'
+'Tis the way, tis the day? It isn't the only way! When your program is
+executed (in 2 seconds), it should use a file -- the count-words method.
+"Quoted" words; numbers like 221B & 3.14; e-mail: x_y@z.com {braces} [brackets]
+TEXT
+fi
+
+rm -f build/wordcounter.jsa
+java -XX:ArchiveClassesAtExit=build/wordcounter.jsa -cp build/wordcounter.jar \
+    wordCounter.QuickWordCounter "$training" > /dev/null
+
+echo "Created build/wordcounter.jsa. Run with:"
+echo "java -XX:SharedArchiveFile=build/wordcounter.jsa -cp build/wordcounter.jar wordCounter.QuickWordCounter file"
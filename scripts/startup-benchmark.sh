@@ -0,0 +1,35 @@
+#!/bin/sh
+# Measures time to first result for a small input: the mean wall clock time of
+# a complete QuickWordCounter run, with and without the AppCDS archive. Run
+# scripts/create-cds-archive.sh first.
+#
+# Usage: scripts/startup-benchmark.sh [runs] [file]
+set -e
+cd "$(dirname "$0")/.."
+
+runs=${1:-20}
+file=${2:-build/training.txt}
+if [ ! -f build/wordcounter.jsa ]; then
+    echo "build/wordcounter.jsa not found; run scripts/create-cds-archive.sh first"
+    exit 1
+fi
+
+bench() {
+    label=$1
+    shift
+    "$@" > /dev/null # Warm the file system cache
+    start=$(date +%s%N)
+    i=0
+    while [ $i -lt "$runs" ]; do
+        "$@" > /dev/null
+        i=$((i + 1))
+    done
+    end=$(date +%s%N)
+    echo "$label: $(((end - start) / runs / 1000000)) ms per run"
+}
+
+jar=build/wordcounter.jar
+bench "Default CDS" java -cp $jar wordCounter.QuickWordCounter "$file"
+bench "AppCDS" java -XX:SharedArchiveFile=build/wordcounter.jsa -cp $jar wordCounter.QuickWordCounter "$file"
+bench "AppCDS, C1 only" java -XX:SharedArchiveFile=build/wordcounter.jsa -XX:TieredStopAtLevel=1 \
+    -cp $jar wordCounter.QuickWordCounter "$file"
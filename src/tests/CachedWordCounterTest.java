@@ -0,0 +1,149 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wordCounter.CachedWordCounter;
+import wordCounter.ResultCache;
+
+public class CachedWordCounterTest {
+
+    File directory;
+    File file1, file2;
+    List<File> files;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("cache").toFile();
+        file1 = new File(directory, "one.txt");
+        file2 = new File(directory, "two.txt");
+        write(file1, "hello world helloo world\n");
+        write(file2, "Hello again, world!\n");
+        files = new ArrayList<File>();
+        files.add(file1);
+        files.add(file2);
+    }
+
+    @After
+    public void tearDown() {
+        File cacheDirectory = new File(directory, "cache");
+        if (cacheDirectory.isDirectory()) {
+            for (File file : cacheDirectory.listFiles()) {
+                file.delete();
+            }
+            cacheDirectory.delete();
+        }
+        file1.delete();
+        file2.delete();
+        directory.delete();
+    }
+
+    private void write(File file, String contents) throws Exception {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ResultCache newCache() {
+        return new ResultCache(new File(directory, "cache"), 1024 * 1024, 1000);
+    }
+
+    @Test
+    public void testRerunIsServedFromDisk() throws Exception {
+        CachedWordCounter counter = new CachedWordCounter(newCache());
+        HashMap<String, Integer> first = counter.count(files);
+        assertEquals(0, counter.getHits());
+        assertEquals(2, counter.getMisses());
+        assertEquals(3, (int) first.get("world"));
+        assertEquals(2, (int) first.get("hello"));
+
+        counter = new CachedWordCounter(newCache()); // Empty memory tier
+        HashMap<String, Integer> second = counter.count(files);
+        assertEquals(2, counter.getHits());
+        assertEquals(0, counter.getMisses());
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testChangedFileIsRecounted() throws Exception {
+        CachedWordCounter counter = new CachedWordCounter(newCache());
+        counter.count(files);
+        write(file2, "goodbye world\n");
+        HashMap<String, Integer> results = counter.count(files);
+        assertEquals(1, counter.getHits());
+        assertEquals(3, counter.getMisses());
+        assertEquals(3, (int) results.get("world"));
+        assertFalse(results.containsKey("again"));
+    }
+
+    @Test
+    public void testManifestNoticesChangedFile() throws Exception {
+        long old = System.currentTimeMillis() - 60000;
+        file1.setLastModified(old);
+        file2.setLastModified(old);
+        new CachedWordCounter(newCache()).count(files);
+        assertTrue(new File(new File(directory, "cache"), "manifest.txt").isFile());
+
+        write(file2, "goodbye world\n");
+        file2.setLastModified(old + 30000);
+        CachedWordCounter counter = new CachedWordCounter(newCache());
+        HashMap<String, Integer> results = counter.count(files);
+        assertEquals(1, counter.getHits());
+        assertEquals(1, counter.getMisses());
+        assertEquals(3, (int) results.get("world"));
+        assertFalse(results.containsKey("again"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        HashMap<String, Integer> counts = new HashMap<String, Integer>();
+        counts.put("word", 1);
+        ResultCache cache = new ResultCache(new File(directory, "cache"), 40, 1);
+        cache.put("a", counts);
+        cache.put("b", counts);
+        cache.get("a");
+        cache.put("c", counts);
+        assertEquals(2, cache.diskEntries());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertEquals(1, cache.memoryEntries());
+    }
+
+    @Test
+    public void testMemoryHitKeepsDiskEntry() throws Exception {
+        HashMap<String, Integer> counts = new HashMap<String, Integer>();
+        counts.put("word", 1);
+        ResultCache cache = new ResultCache(new File(directory, "cache"), 40, 1000);
+        cache.put("a", counts);
+        cache.put("b", counts);
+        cache.get("a"); // Served from memory
+        cache.put("c", counts);
+        assertEquals(3, cache.memoryEntries());
+
+        cache = new ResultCache(new File(directory, "cache"), 40, 1000); // Disk only
+        assertEquals(2, cache.diskEntries());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void testFilesAreReadAsUtf8() throws Exception {
+        write(file1, "caf\u00e9 caf\u00e9\n");
+        HashMap<String, Integer> results = new CachedWordCounter(newCache()).count(files);
+        assertEquals(2, (int) results.get("caf\u00e9"));
+    }
+
+    @Test
+    public void testKeyDependsOnContent() {
+        assertEquals(ResultCache.key("hello".getBytes()), ResultCache.key("hello".getBytes()));
+        assertFalse(ResultCache.key("hello".getBytes()).equals(ResultCache.key("hellO".getBytes())));
+    }
+}
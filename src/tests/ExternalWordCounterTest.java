@@ -0,0 +1,123 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wordCounter.ExternalWordCounter;
+import wordCounter.WordCounter;
+
+public class ExternalWordCounterTest {
+
+    File file;
+    String text;
+    WordCounter w1;
+
+    @Before
+    public void setUp() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            builder.append("It isn't the only way! The counting should be done by a public method.\n");
+            builder.append("word" + (char) ('a' + i % 26) + (char) ('a' + i / 26) + " and the-end\n");
+        }
+        text = builder.toString();
+        file = File.createTempFile("external", ".txt");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        w1 = new WordCounter();
+        w1.countWords(text, 1);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private int[] expectedCounts(boolean mostFrequent) {
+        List<Integer> counts = new ArrayList<Integer>(w1.getWordsHashMap().values());
+        Collections.sort(counts, Collections.reverseOrder());
+        List<Integer> table = mostFrequent ? counts.subList(0, 25) : counts.subList(counts.size() - 25, counts.size());
+        int[] result = new int[table.size()];
+        for (int i = 0; i < table.size(); i++) {
+            result[i] = table.get(i);
+        }
+        return result;
+    }
+
+    @Test
+    public void testSpillAndMergeMatchesInMemoryCount() throws Exception {
+        ExternalWordCounter counter = new ExternalWordCounter(1, 200, null);
+        counter.countWords(file);
+        assertTrue(counter.getRunsWritten() > 64); // Forces an intermediate merge
+        assertEquals(w1.numberOfDifferentWords(), counter.numberOfDifferentWords());
+        assertArrayEquals(expectedCounts(true), counter.getMostFrequentCounts());
+        assertArrayEquals(expectedCounts(false), counter.getLeastFrequentCounts());
+        assertEquals("the", counter.getMostFrequentWords()[0]);
+        assertEquals(600, counter.getMostFrequentCounts()[0]);
+    }
+
+    @Test
+    public void testWithinBudget() throws Exception {
+        ExternalWordCounter counter = new ExternalWordCounter();
+        counter.countWords(file);
+        assertEquals(1, counter.getRunsWritten());
+        assertEquals(w1.numberOfDifferentWords(), counter.numberOfDifferentWords());
+        assertArrayEquals(expectedCounts(true), counter.getMostFrequentCounts());
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        File empty = File.createTempFile("external", ".txt");
+        try {
+            ExternalWordCounter counter = new ExternalWordCounter();
+            counter.countWords(empty);
+            assertEquals(0, counter.numberOfDifferentWords());
+            assertEquals(0, counter.getMostFrequentWords().length);
+        } finally {
+            empty.delete();
+        }
+    }
+
+    @Test
+    public void testWordsLongerThanChunk() throws Exception {
+        StringBuilder builder = new StringBuilder("caf\u00e9 ");
+        for (int i = 0; i < 70000; i++) {
+            builder.append('x');
+        }
+        builder.append(" caf\u00e9 hello");
+        Files.write(file.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+
+        ExternalWordCounter counter = new ExternalWordCounter(1, 1000, null);
+        counter.countWords(file); // The long word is counted whole
+        assertEquals(3, counter.numberOfDifferentWords());
+        assertEquals("caf\u00e9", counter.getMostFrequentWords()[0]);
+        assertEquals(2, counter.getMostFrequentCounts()[0]);
+    }
+
+    @Test
+    public void testChunksAreOnlyCutAtDelimiters() throws Exception {
+        String text = "alpha\u000bbeta gamma\u2003delta gamma\u2003delta\n";
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+
+        WordCounter wordCounter = new WordCounter();
+        wordCounter.countWords(text, 1);
+        for (int chunkLength = 1; chunkLength <= text.length(); chunkLength++) {
+            ExternalWordCounter counter = new ExternalWordCounter(1, chunkLength, null);
+            counter.countWords(file);
+            assertEquals(wordCounter.numberOfDifferentWords(), counter.numberOfDifferentWords());
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testInvalidBudget() {
+        new ExternalWordCounter(0, 200, null);
+    }
+}
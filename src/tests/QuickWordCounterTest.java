@@ -0,0 +1,51 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wordCounter.QuickWordCounter;
+
+public class QuickWordCounterTest {
+
+    File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("quick", ".txt");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private String run() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true, "UTF-8"));
+        try {
+            QuickWordCounter.main(new String[] { file.getPath() });
+        } finally {
+            System.setOut(out);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testFileIsReadAsUtf8() throws Exception {
+        Files.write(file.toPath(), "caf\u00e9 na\u00efve caf\u00e9\n".getBytes(StandardCharsets.UTF_8));
+        String output = run();
+        assertTrue(output.contains("caf\u00e9"));
+        assertTrue(output.contains("na\u00efve"));
+        assertFalse(output.contains("Running time"));
+    }
+}
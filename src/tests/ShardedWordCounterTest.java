@@ -0,0 +1,100 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wordCounter.ShardedWordCounter;
+import wordCounter.WordCountIO;
+import wordCounter.WordCounter;
+
+public class ShardedWordCounterTest {
+
+    ShardedWordCounter coordinator;
+    File file1, file2;
+    String text;
+
+    @Before
+    public void setUp() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append("The quick brown fox jumps over the lazy dog, and the dog's owner isn't amused.\n");
+            builder.append("Word" + (char) ('a' + i % 26) + " appears here!\n");
+        }
+        text = builder.toString();
+        file1 = File.createTempFile("sharded", ".txt");
+        file2 = File.createTempFile("sharded", ".txt");
+        Files.write(file1.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        Files.write(file2.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        coordinator = new ShardedWordCounter(3, 500);
+        coordinator.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        coordinator.close();
+        file1.delete();
+        file2.delete();
+    }
+
+    @Test
+    public void testCountMatchesSingleProcess() throws Exception {
+        WordCounter w1 = new WordCounter();
+        w1.countWords(text, 1);
+        HashMap<String, Integer> expected = w1.getWordsHashMap();
+
+        List<File> files = new ArrayList<File>();
+        files.add(file1);
+        HashMap<String, Integer> actual = coordinator.count(files);
+        assertEquals(expected, actual);
+        assertEquals(600, (int) actual.get("the"));
+        assertEquals(200, (int) actual.get("dog's"));
+    }
+
+    @Test
+    public void testCountAcrossFiles() throws Exception {
+        List<File> files = new ArrayList<File>();
+        files.add(file1);
+        files.add(file2);
+        HashMap<String, Integer> actual = coordinator.count(files);
+        assertEquals(1200, (int) actual.get("the"));
+        assertEquals(16, (int) actual.get("worda"));
+    }
+
+    @Test
+    public void testWordLongerThan64K() throws Exception {
+        StringBuilder builder = new StringBuilder("short ");
+        for (int i = 0; i < 70000; i++) {
+            builder.append('x');
+        }
+        Files.write(file1.toPath(), builder.toString().getBytes(StandardCharsets.UTF_8));
+        List<File> files = new ArrayList<File>();
+        files.add(file1);
+        HashMap<String, Integer> actual = coordinator.count(files);
+        assertEquals(1, (int) actual.get("short"));
+        assertEquals(2, actual.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeEntryCountIsRejected() throws Exception {
+        byte[] damaged = { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xfb }; // -5
+        WordCountIO.read(new DataInputStream(new ByteArrayInputStream(damaged)));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testInvalidWorkers() {
+        new ShardedWordCounter(0, 500);
+    }
+}
@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import wordCounter.CounterMetrics;
 import wordCounter.WordCounter;
 
 public class WordCounterTest {
@@ -49,6 +50,18 @@ public class WordCounterTest {
 
     }
 
+    @Test
+    public void testCountWordsWithWordLongerThanSegment() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            builder.append('x');
+        }
+        builder.append(" hello world hello 42 ");
+        w1.countWords(builder.toString(), 4);
+        assertEquals(2, (int) w1.getWordsHashMap().get("hello"));
+        assertEquals(3, w1.numberOfDifferentWords());
+    }
+
     @Test
     public void testNumberOfDifferentWords() {
         assertEquals(68, w2.numberOfDifferentWords());
@@ -113,6 +126,26 @@ public class WordCounterTest {
         w2.getWordCounts(0, 30);
     }
     
+    @Test
+    public void testMetrics() {
+        CounterMetrics metrics = WordCounter.getMetrics();
+        metrics.reset();
+        metrics.setEnabled(true);
+        try {
+            w1.countWords("hello world helloo world", 2);
+            assertEquals(4, metrics.getTokensProcessed());
+            assertEquals(24, metrics.getCharactersProcessed());
+            assertTrue(metrics.getTokensPerSecond() > 0);
+            assertTrue(metrics.getMaxSegmentSkew() >= 1);
+            assertTrue(metrics.getPhaseMillis(CounterMetrics.Phase.MERGE) > 0);
+        } finally {
+            metrics.setEnabled(false);
+            metrics.reset();
+        }
+        w1.countWords("hello world helloo world", 2);
+        assertEquals(0, metrics.getTokensProcessed());
+    }
+
     // Tests commented out relate to private methods
 
 //     @Test
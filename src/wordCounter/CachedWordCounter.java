@@ -0,0 +1,130 @@
+package wordCounter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Counts words across a set of files, reusing the counts of any file whose
+ * content has not changed since an earlier run. Only new or changed files are
+ * counted; the rest are merged straight from the {@link ResultCache}. Files
+ * are read as UTF-8, like in the other batch counters.
+ * 
+ * Usage: java wordCounter.CachedWordCounter cacheDirectory file [file...]
+ */
+public class CachedWordCounter {
+
+    public static final long DEFAULT_MAX_DISK_BYTES = 1024L * 1024 * 1024;
+    public static final long DEFAULT_MAX_MEMORY_WORDS = 4 * 1024 * 1024;
+
+    private final ResultCache cache;
+    private int hits;
+    private int misses;
+
+    /**
+     * Parametered constructor
+     * 
+     * @param cache
+     *            Cache of per-file counts
+     */
+    public CachedWordCounter(ResultCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Main function
+     */
+    public static void main(String args[]) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java wordCounter.CachedWordCounter cacheDirectory file [file...]");
+            System.exit(1);
+        }
+        List<File> files = new ArrayList<File>();
+        for (int i = 1; i < args.length; i++) {
+            files.add(new File(args[i]));
+        }
+        ResultCache cache = new ResultCache(new File(args[0]), DEFAULT_MAX_DISK_BYTES, DEFAULT_MAX_MEMORY_WORDS);
+        CachedWordCounter counter = new CachedWordCounter(cache);
+        CounterMetrics metrics = WordCounter.getMetrics();
+        metrics.registerMBean();
+
+        long startTime = System.nanoTime();
+        HashMap<String, Integer> words = counter.count(files);
+        double currentRunningTime = ((double) (System.nanoTime() - startTime)) / 1000000;
+        System.out.println("Running time: " + currentRunningTime + " ms");
+        System.out.println("Cache hits: " + counter.getHits() + ", misses: " + counter.getMisses());
+
+        WordCounter wordCounter = new WordCounter();
+        wordCounter.loadResults(words);
+        System.out.println("\nSummary stats:");
+        wordCounter.printStats();
+        if (metrics.isEnabled()) {
+            metrics.report();
+        }
+    }
+
+    /**
+     * Counts the words in a set of files
+     * 
+     * @param files
+     *            Files to count
+     * @return Frequency of words across all files
+     * @throws IOException
+     *             if a file cannot be read or its counts cannot be cached
+     */
+    public HashMap<String, Integer> count(List<File> files) throws IOException {
+        HashMap<String, Integer> allResults = new HashMap<String, Integer>();
+        for (File file : files) {
+            WordCountIO.merge(allResults, countFile(file));
+        }
+        cache.saveManifest();
+        return allResults;
+    }
+
+    /**
+     * Returns a file's counts from the cache, or counts and caches them
+     * 
+     * @param file
+     *            File to count
+     * @return Frequency of words in the file
+     * @throws IOException
+     *             if the file cannot be read or its counts cannot be cached
+     */
+    private HashMap<String, Integer> countFile(File file) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String key = cache.knownKey(file, length, lastModified);
+        if (key != null) { // Unchanged since it was last hashed
+            HashMap<String, Integer> counts = cache.get(key);
+            if (counts != null) {
+                hits++;
+                return counts;
+            }
+        }
+
+        byte[] content = Files.readAllBytes(file.toPath());
+        key = ResultCache.key(content);
+        HashMap<String, Integer> counts = cache.get(key);
+        if (counts != null) {
+            hits++;
+        } else {
+            misses++;
+            counts = WordCounter.countChunk(new String(content, StandardCharsets.UTF_8));
+            cache.put(key, counts);
+        }
+        cache.rememberKey(file, length, lastModified, key);
+        return counts;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+}
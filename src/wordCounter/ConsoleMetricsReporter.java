@@ -0,0 +1,13 @@
+package wordCounter;
+
+/**
+ * Default reporter, which prints the metrics to standard output
+ */
+public class ConsoleMetricsReporter implements MetricsReporter {
+
+    @Override
+    public void report(CounterMetrics metrics) {
+        System.out.println("\nMetrics:");
+        System.out.println(metrics);
+    }
+}
@@ -0,0 +1,300 @@
+package wordCounter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects timings and throughput figures from the counting engine. All
+ * recording is skipped unless the metrics are enabled, either through
+ * setEnabled() or by starting the JVM with -DwordCounter.metrics=true
+ */
+public class CounterMetrics implements CounterMetricsMBean {
+
+    /**
+     * The phases of a word count. Tokenising and counting share a single pass
+     * over the text, so both are recorded under COUNT
+     */
+    public enum Phase {
+        READ, NORMALIZE, COUNT, MERGE, RANK
+    }
+
+    public static final String OBJECT_NAME = "wordCounter:type=CounterMetrics";
+
+    private volatile boolean enabled = Boolean.getBoolean("wordCounter.metrics");
+    private volatile MetricsReporter reporter = new ConsoleMetricsReporter();
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicLong charactersProcessed = new AtomicLong();
+    private final AtomicLong tokensProcessed = new AtomicLong();
+    private final AtomicLong countingNanos = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong stealCount = new AtomicLong();
+    private volatile double lastSegmentSkew;
+    private volatile double maxSegmentSkew;
+
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Replaces the reporter used by report()
+     * 
+     * @param reporter
+     *            The new reporter
+     */
+    public void setReporter(MetricsReporter reporter) {
+        if (reporter == null)
+            throw new RuntimeException("Reporter must not be null");
+        this.reporter = reporter;
+    }
+
+    /**
+     * Hands the current metrics to the reporter
+     */
+    public void report() {
+        this.reporter.report(this);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server
+     * 
+     * @throws RuntimeException
+     *             if registration fails
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            throw new RuntimeException("Unable to register metrics MBean", e);
+        }
+    }
+
+    /**
+     * Adds the time spent in a phase
+     * 
+     * @param phase
+     *            The phase
+     * @param nanos
+     *            Elapsed time in nanoseconds
+     */
+    public void recordPhase(Phase phase, long nanos) {
+        this.phaseNanos.addAndGet(phase.ordinal(), nanos);
+    }
+
+    /**
+     * Records one counting run of countWords
+     * 
+     * @param characters
+     *            Length of the text counted
+     * @param nanos
+     *            Wall clock time of the counting, including joins and merging
+     *            but not the garbage collection run before it
+     */
+    public void recordCounting(long characters, long nanos) {
+        this.charactersProcessed.addAndGet(characters);
+        this.countingNanos.addAndGet(nanos);
+    }
+
+    public void recordTokens(long tokens) {
+        this.tokensProcessed.addAndGet(tokens);
+    }
+
+    public void recordAllocation(long bytes) {
+        if (bytes > 0)
+            this.allocatedBytes.addAndGet(bytes);
+    }
+
+    public void recordSteals(long steals) {
+        this.stealCount.addAndGet(steals);
+    }
+
+    /**
+     * Records the skew across the segments of one fork/join run, defined as
+     * the slowest segment's time divided by the mean segment time. A value of
+     * 1 means the work was perfectly balanced
+     * 
+     * @param segmentNanos
+     *            Counting time of each segment
+     */
+    public void recordSegments(long[] segmentNanos) {
+        if (segmentNanos.length == 0)
+            return;
+        long max = 0;
+        long total = 0;
+        for (long nanos : segmentNanos) {
+            max = Math.max(max, nanos);
+            total += nanos;
+        }
+        if (total == 0)
+            return;
+        double skew = (double) max * segmentNanos.length / total;
+        this.lastSegmentSkew = skew;
+        if (skew > this.maxSegmentSkew)
+            this.maxSegmentSkew = skew;
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread
+     * 
+     * @return Allocated bytes, or 0 if the JVM cannot measure them
+     */
+    public static long threadAllocatedBytes() {
+        return Allocation.currentThread();
+    }
+
+    public double getPhaseMillis(Phase phase) {
+        return ((double) this.phaseNanos.get(phase.ordinal())) / 1000000;
+    }
+
+    @Override
+    public long getCharactersProcessed() {
+        return this.charactersProcessed.get();
+    }
+
+    @Override
+    public long getTokensProcessed() {
+        return this.tokensProcessed.get();
+    }
+
+    @Override
+    public double getCharactersPerSecond() {
+        return perSecond(this.charactersProcessed.get());
+    }
+
+    @Override
+    public double getTokensPerSecond() {
+        return perSecond(this.tokensProcessed.get());
+    }
+
+    @Override
+    public double getReadMillis() {
+        return getPhaseMillis(Phase.READ);
+    }
+
+    @Override
+    public double getNormalizeMillis() {
+        return getPhaseMillis(Phase.NORMALIZE);
+    }
+
+    @Override
+    public double getCountMillis() {
+        return getPhaseMillis(Phase.COUNT);
+    }
+
+    @Override
+    public double getMergeMillis() {
+        return getPhaseMillis(Phase.MERGE);
+    }
+
+    @Override
+    public double getRankMillis() {
+        return getPhaseMillis(Phase.RANK);
+    }
+
+    @Override
+    public double getLastSegmentSkew() {
+        return this.lastSegmentSkew;
+    }
+
+    @Override
+    public double getMaxSegmentSkew() {
+        return this.maxSegmentSkew;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return this.allocatedBytes.get();
+    }
+
+    @Override
+    public long getStealCount() {
+        return this.stealCount.get();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < this.phaseNanos.length(); i++) {
+            this.phaseNanos.set(i, 0);
+        }
+        this.charactersProcessed.set(0);
+        this.tokensProcessed.set(0);
+        this.countingNanos.set(0);
+        this.allocatedBytes.set(0);
+        this.stealCount.set(0);
+        this.lastSegmentSkew = 0;
+        this.maxSegmentSkew = 0;
+    }
+
+    /**
+     * Helper function to convert a total into a per-second rate over the time
+     * spent in countWords
+     * 
+     * @param total
+     *            Total amount processed
+     * @return Amount processed per second
+     */
+    private double perSecond(long total) {
+        long nanos = this.countingNanos.get();
+        if (nanos == 0)
+            return 0;
+        return total * 1000000000.0 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Characters/s: %.0f\n", getCharactersPerSecond()));
+        builder.append(String.format("Tokens/s: %.0f\n", getTokensPerSecond()));
+        for (Phase phase : Phase.values()) {
+            builder.append(String.format("%s: %.3f ms\n", phase, getPhaseMillis(phase)));
+        }
+        builder.append(String.format("Segment skew (last/max): %.2f/%.2f\n", this.lastSegmentSkew,
+                this.maxSegmentSkew));
+        builder.append("Allocated bytes: " + getAllocatedBytes() + "\n");
+        builder.append("Pool steals: " + getStealCount());
+        return builder.toString();
+    }
+
+    /**
+     * Lazily looks up the thread MXBean, so that the management classes are
+     * only loaded once metrics are actually recorded
+     * 
+     */
+    private static class Allocation {
+
+        private static final com.sun.management.ThreadMXBean THREADS = lookup();
+
+        private static com.sun.management.ThreadMXBean lookup() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+                if (sunThreads.isThreadAllocatedMemorySupported()) {
+                    sunThreads.setThreadAllocatedMemoryEnabled(true);
+                    return sunThreads;
+                }
+            }
+            return null;
+        }
+
+        static long currentThread() {
+            if (THREADS == null)
+                return 0;
+            return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package wordCounter;
+
+/**
+ * JMX management interface for {@link CounterMetrics}
+ */
+public interface CounterMetricsMBean {
+
+    public boolean isEnabled();
+
+    public void setEnabled(boolean enabled);
+
+    public long getCharactersProcessed();
+
+    public long getTokensProcessed();
+
+    public double getCharactersPerSecond();
+
+    public double getTokensPerSecond();
+
+    public double getReadMillis();
+
+    public double getNormalizeMillis();
+
+    public double getCountMillis();
+
+    public double getMergeMillis();
+
+    public double getRankMillis();
+
+    public double getLastSegmentSkew();
+
+    public double getMaxSegmentSkew();
+
+    public long getAllocatedBytes();
+
+    public long getStealCount();
+
+    public void reset();
+}
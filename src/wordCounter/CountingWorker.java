@@ -0,0 +1,155 @@
+package wordCounter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Worker process for sharded counting. Listens on a local socket, and for
+ * each request (file path, start byte, end byte) counts the words in that
+ * byte range with the fork/join counter and sends the counts back.
+ * 
+ * On startup the worker prints "READY port" to standard output, so that the
+ * coordinator can find it. The worker exits once its standard input reaches
+ * end of file, which happens when the coordinator closes it or dies, so
+ * workers are never left running on their own
+ */
+public class CountingWorker {
+
+    public static final String READY = "READY";
+
+    private final ServerSocket serverSocket;
+
+    /**
+     * Creates a worker listening on the loopback interface
+     * 
+     * @param port
+     *            Port to listen on, or 0 for any free port
+     * @throws IOException
+     *             if the socket cannot be opened
+     */
+    public CountingWorker(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Main function
+     */
+    public static void main(String args[]) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        CountingWorker worker = new CountingWorker(port);
+        WordCounter.getMetrics().registerMBean();
+        exitWhenInputCloses();
+        System.out.println(READY + " " + worker.getPort());
+        System.out.flush();
+        worker.serve();
+    }
+
+    /**
+     * Starts a thread that ends the process once standard input reaches end of
+     * file
+     */
+    private static void exitWhenInputCloses() {
+        Thread watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (System.in.read() != -1) {
+                    }
+                } catch (IOException e) { // Treated the same as end of file
+                }
+                System.exit(0);
+            }
+        });
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the process is killed. Each connection is
+     * served on its own thread
+     */
+    public void serve() throws IOException {
+        while (true) {
+            final Socket socket = this.serverSocket.accept();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    handle(socket);
+                }
+            });
+            thread.start();
+        }
+    }
+
+    /**
+     * Serves requests on a connection until the coordinator closes it
+     * 
+     * @param socket
+     *            Connection to the coordinator
+     */
+    private void handle(Socket socket) {
+        try {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                while (true) {
+                    String path;
+                    try {
+                        path = in.readUTF();
+                    } catch (EOFException e) { // Coordinator has finished
+                        return;
+                    }
+                    long start = in.readLong();
+                    long end = in.readLong();
+                    WordCountIO.write(out, countRange(new File(path), start, end));
+                    out.flush();
+                }
+            } finally {
+                socket.close();
+            }
+        } catch (IOException e) { // The coordinator sees the closed connection
+            System.err.println("Worker request failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Counts the words in a byte range of a file. The range must start and end
+     * on whitespace, so that no word is split between ranges
+     * 
+     * @param file
+     *            Source file
+     * @param start
+     *            Index of the first byte
+     * @param end
+     *            Index after the last byte
+     * @return Frequency of words in the range
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    static HashMap<String, Integer> countRange(File file, long start, long end) throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        RandomAccessFile reader = new RandomAccessFile(file, "r");
+        try {
+            reader.seek(start);
+            reader.readFully(bytes);
+        } finally {
+            reader.close();
+        }
+        return WordCounter.countChunk(new String(bytes, StandardCharsets.UTF_8));
+    }
+}
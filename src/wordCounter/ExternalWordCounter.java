@@ -0,0 +1,564 @@
+package wordCounter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Counts words in files whose vocabulary does not fit in memory. Text is read
+ * in chunks and counted with the fork/join counter. Once the estimated size
+ * of the counts reaches the memory budget, they are sorted by word and
+ * written to a run file on disk. The runs are then combined with a k-way
+ * merge, and the 25 most and least frequent words are picked out of the
+ * merged stream, so memory use does not grow with the size of the input.
+ * Files are read as UTF-8, and a word longer than the chunk length is split
+ * into pieces of that length, which keeps the read buffer bounded too.
+ * 
+ * Usage: java wordCounter.ExternalWordCounter file [memoryBudgetMB]
+ */
+public class ExternalWordCounter {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+    public static final int DEFAULT_CHUNK_LENGTH = 1024 * 1024;
+    private static final int TABLE_SIZE = 25;
+    private static final int MAX_FAN_IN = 64; // Most runs open at once
+    private static final int ENTRY_OVERHEAD = 64; // Estimated bytes per
+                                                  // HashMap entry, excluding
+                                                  // the word's characters
+
+    private final long memoryBudget;
+    private final int chunkLength;
+    private final File tempDirectory;
+
+    private HashMap<String, Integer> inMemory = new HashMap<String, Integer>();
+    private long inMemoryBytes;
+    private List<File> runs = new ArrayList<File>();
+    private int runsWritten;
+
+    private int numberOfDifferentWords;
+    private List<Entry> mostFrequent = new ArrayList<Entry>();
+    private List<Entry> leastFrequent = new ArrayList<Entry>();
+
+    /**
+     * Constructor using the default memory budget and chunk length, and the
+     * system's temporary directory
+     */
+    public ExternalWordCounter() {
+        this(DEFAULT_MEMORY_BUDGET, DEFAULT_CHUNK_LENGTH, null);
+    }
+
+    /**
+     * Parametered constructor
+     * 
+     * @param memoryBudget
+     *            Estimated bytes of counts to hold before spilling to disk
+     * @param chunkLength
+     *            Number of characters read at a time. Chunks are counted from
+     *            one delimiter to the next, so a word longer than this is
+     *            still counted whole
+     * @param tempDirectory
+     *            Directory for run files, or null for the system default
+     */
+    public ExternalWordCounter(long memoryBudget, int chunkLength, File tempDirectory) {
+        if (memoryBudget < 1)
+            throw new RuntimeException("Memory budget must be larger than 0");
+        if (chunkLength < 1)
+            throw new RuntimeException("Chunk length must be larger than 0");
+        this.memoryBudget = memoryBudget;
+        this.chunkLength = chunkLength;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Main function
+     */
+    public static void main(String args[]) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java wordCounter.ExternalWordCounter file [memoryBudgetMB]");
+            System.exit(1);
+        }
+        long memoryBudget = args.length > 1 ? Long.parseLong(args[1]) * 1024 * 1024 : DEFAULT_MEMORY_BUDGET;
+        ExternalWordCounter counter = new ExternalWordCounter(memoryBudget, DEFAULT_CHUNK_LENGTH, null);
+        CounterMetrics metrics = WordCounter.getMetrics();
+        metrics.registerMBean();
+
+        long startTime = System.nanoTime();
+        counter.countWords(new File(args[0]));
+        double currentRunningTime = ((double) (System.nanoTime() - startTime)) / 1000000;
+        System.out.println("Running time: " + currentRunningTime + " ms");
+        System.out.println("Runs written: " + counter.getRunsWritten());
+        System.out.println("\nSummary stats:");
+        counter.printStats();
+        if (metrics.isEnabled()) {
+            metrics.report();
+        }
+    }
+
+    /**
+     * Counts the words in a file, keeping the 25 most and least frequent
+     * 
+     * @param file
+     *            Source file
+     * @throws IOException
+     *             if the file or a run file cannot be read or written
+     */
+    public void countWords(File file) throws IOException {
+        this.inMemory = new HashMap<String, Integer>();
+        this.inMemoryBytes = 0;
+        this.runs = new ArrayList<File>();
+        this.runsWritten = 0;
+        try {
+            readAndSpill(file);
+            spill();
+            mergeRunsAndRank();
+        } finally {
+            for (File run : runs) {
+                run.delete();
+            }
+            runs.clear();
+        }
+    }
+
+    /**
+     * Reads the file a chunk at a time, cutting each chunk after its last
+     * delimiter so that words are not split between chunks. A word longer
+     * than a chunk stays in the pending text until its delimiter is read, so
+     * it is counted whole, at the cost of holding that word in memory
+     * 
+     * @param file
+     *            Source file
+     * @throws IOException
+     *             if the file or a run file cannot be read or written
+     */
+    private void readAndSpill(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+        try {
+            char[] buffer = new char[chunkLength];
+            StringBuilder pending = new StringBuilder(); // Never holds a
+                                                         // delimiter between
+                                                         // reads
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                int scanFrom = pending.length();
+                pending.append(buffer, 0, read);
+                int cut = pending.length();
+                while (cut > scanFrom && !isDelimiter(pending.charAt(cut - 1))) {
+                    cut--;
+                }
+                if (cut > scanFrom) {
+                    addCounts(WordCounter.countChunk(pending.substring(0, cut)));
+                    pending.delete(0, cut);
+                }
+            }
+            addCounts(WordCounter.countChunk(pending.toString()));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Whether a character separates words. These are StringTokenizer's
+     * default delimiters, as used by WordCounter; other whitespace is part of
+     * a word
+     * 
+     * @param c
+     *            The character
+     * @return True if words are split at the character
+     */
+    private static boolean isDelimiter(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * Adds the counts of one chunk to those held in memory, spilling them to
+     * disk once the memory budget is reached
+     * 
+     * @param counts
+     *            Counts of a chunk
+     * @throws IOException
+     *             if a run file cannot be written
+     */
+    private void addCounts(HashMap<String, Integer> counts) throws IOException {
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            Integer count = inMemory.get(entry.getKey());
+            if (count == null) {
+                inMemory.put(entry.getKey(), entry.getValue());
+                inMemoryBytes += ENTRY_OVERHEAD + 2 * entry.getKey().length();
+            } else {
+                inMemory.put(entry.getKey(), count + entry.getValue());
+            }
+        }
+        if (inMemoryBytes >= memoryBudget) {
+            spill();
+        }
+    }
+
+    /**
+     * Writes the counts held in memory to a new run file, sorted by word
+     * 
+     * @throws IOException
+     *             if the run file cannot be written
+     */
+    private void spill() throws IOException {
+        if (inMemory.isEmpty())
+            return;
+        ArrayList<String> sortedWords = new ArrayList<String>(inMemory.keySet());
+        Collections.sort(sortedWords);
+
+        RunWriter writer = new RunWriter(newRunFile());
+        try {
+            for (String word : sortedWords) {
+                writer.write(word, inMemory.get(word));
+            }
+        } finally {
+            writer.close();
+        }
+        inMemory = new HashMap<String, Integer>();
+        inMemoryBytes = 0;
+    }
+
+    /**
+     * Merges the runs, at most MAX_FAN_IN at a time, and ranks the final
+     * merged stream
+     * 
+     * @throws IOException
+     *             if a run file cannot be read or written
+     */
+    private void mergeRunsAndRank() throws IOException {
+        CounterMetrics metrics = WordCounter.getMetrics();
+        boolean measure = metrics.isEnabled();
+        long startTime = measure ? System.nanoTime() : 0;
+
+        while (runs.size() > MAX_FAN_IN) {
+            List<File> group = new ArrayList<File>(runs.subList(0, MAX_FAN_IN));
+            runs.subList(0, MAX_FAN_IN).clear();
+            final RunWriter writer = new RunWriter(newRunFile());
+            try {
+                merge(group, new EntrySink() {
+                    @Override
+                    public void accept(String word, int count) throws IOException {
+                        writer.write(word, count);
+                    }
+                });
+            } finally {
+                writer.close();
+                for (File run : group) {
+                    run.delete();
+                }
+            }
+        }
+
+        final Ranker ranker = new Ranker();
+        merge(runs, new EntrySink() {
+            @Override
+            public void accept(String word, int count) {
+                ranker.add(word, count);
+            }
+        });
+        numberOfDifferentWords = ranker.seen;
+        mostFrequent = ranker.mostFrequent();
+        leastFrequent = ranker.leastFrequent();
+
+        if (measure) {
+            metrics.recordPhase(CounterMetrics.Phase.MERGE, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * k-way merge of sorted runs. Each distinct word is passed to the sink
+     * once, with its counts from all runs added up, in sorted order
+     * 
+     * @param runFiles
+     *            Runs to merge
+     * @param sink
+     *            Receives the merged entries
+     * @throws IOException
+     *             if a run file cannot be read
+     */
+    private void merge(List<File> runFiles, EntrySink sink) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(Math.max(1, runFiles.size()),
+                new Comparator<RunReader>() {
+                    @Override
+                    public int compare(RunReader a, RunReader b) {
+                        return a.word.compareTo(b.word);
+                    }
+                });
+        List<RunReader> readers = new ArrayList<RunReader>();
+        try {
+            for (File run : runFiles) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance())
+                    queue.add(reader);
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                String word = reader.word;
+                int count = reader.count;
+                if (reader.advance())
+                    queue.add(reader);
+                while (!queue.isEmpty() && queue.peek().word.equals(word)) {
+                    RunReader next = queue.poll();
+                    count += next.count;
+                    if (next.advance())
+                        queue.add(next);
+                }
+                sink.accept(word, count);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private File newRunFile() throws IOException {
+        File run = File.createTempFile("wordcount-run", ".bin", tempDirectory);
+        run.deleteOnExit();
+        runs.add(run);
+        runsWritten++;
+        return run;
+    }
+
+    /**
+     * Prints the 25 most frequent and 25 least frequent words
+     */
+    public void printStats() {
+        if (numberOfDifferentWords >= TABLE_SIZE) {
+            System.out.println("\nMost frequent words:");
+            print(mostFrequent, 1);
+            System.out.println("\nLeast frequent words:");
+            print(leastFrequent, numberOfDifferentWords - TABLE_SIZE + 1);
+        } else if (numberOfDifferentWords == 0) {
+            System.out.println("No words found");
+        } else {
+            print(mostFrequent, 1);
+        }
+    }
+
+    private void print(List<Entry> entries, int firstRank) {
+        int rank = firstRank;
+        for (Entry entry : entries) {
+            System.out.printf("%d %d %s\n", rank, entry.count, entry.word);
+            rank++;
+        }
+    }
+
+    /**
+     * Returns the number of different words found
+     * 
+     * @return number of different words
+     */
+    public int numberOfDifferentWords() {
+        return numberOfDifferentWords;
+    }
+
+    /**
+     * Returns the up to 25 most frequent words, most frequent first
+     * 
+     * @return Array of words
+     */
+    public String[] getMostFrequentWords() {
+        return wordsOf(mostFrequent);
+    }
+
+    /**
+     * Returns the counts of the up to 25 most frequent words, most frequent
+     * first
+     * 
+     * @return Array of counts
+     */
+    public int[] getMostFrequentCounts() {
+        return countsOf(mostFrequent);
+    }
+
+    /**
+     * Returns the up to 25 least frequent words, most frequent first
+     * 
+     * @return Array of words
+     */
+    public String[] getLeastFrequentWords() {
+        return wordsOf(leastFrequent);
+    }
+
+    /**
+     * Returns the counts of the up to 25 least frequent words, most frequent
+     * first
+     * 
+     * @return Array of counts
+     */
+    public int[] getLeastFrequentCounts() {
+        return countsOf(leastFrequent);
+    }
+
+    /**
+     * Returns the number of run files written by the last count, including
+     * intermediate merges
+     * 
+     * @return Number of runs
+     */
+    public int getRunsWritten() {
+        return runsWritten;
+    }
+
+    private static String[] wordsOf(List<Entry> entries) {
+        String[] words = new String[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            words[i] = entries.get(i).word;
+        }
+        return words;
+    }
+
+    private static int[] countsOf(List<Entry> entries) {
+        int[] counts = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            counts[i] = entries.get(i).count;
+        }
+        return counts;
+    }
+
+    /**
+     * Receives the entries produced by a merge
+     * 
+     */
+    private interface EntrySink {
+        void accept(String word, int count) throws IOException;
+    }
+
+    /**
+     * A word and its count
+     * 
+     */
+    private static class Entry {
+
+        final String word;
+        final int count;
+
+        Entry(String word, int count) {
+            this.word = word;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Keeps the 25 most and least frequent words of a stream, using a bounded
+     * min-heap and max-heap respectively
+     * 
+     */
+    private static class Ranker {
+
+        private static final Comparator<Entry> BY_COUNT = new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return a.count < b.count ? -1 : (a.count > b.count ? 1 : 0);
+            }
+        };
+
+        private final PriorityQueue<Entry> top = new PriorityQueue<Entry>(TABLE_SIZE + 1, BY_COUNT);
+        private final PriorityQueue<Entry> bottom = new PriorityQueue<Entry>(TABLE_SIZE + 1,
+                Collections.reverseOrder(BY_COUNT));
+        private int seen;
+
+        void add(String word, int count) {
+            seen++;
+            Entry entry = new Entry(word, count);
+            if (top.size() < TABLE_SIZE || count > top.peek().count) {
+                top.add(entry);
+                if (top.size() > TABLE_SIZE)
+                    top.poll();
+            }
+            if (bottom.size() < TABLE_SIZE || count < bottom.peek().count) {
+                bottom.add(entry);
+                if (bottom.size() > TABLE_SIZE)
+                    bottom.poll();
+            }
+        }
+
+        List<Entry> mostFrequent() {
+            return drainDescending(top);
+        }
+
+        List<Entry> leastFrequent() {
+            return drainDescending(bottom);
+        }
+
+        private static List<Entry> drainDescending(PriorityQueue<Entry> heap) {
+            List<Entry> entries = new ArrayList<Entry>(heap);
+            Collections.sort(entries, Collections.reverseOrder(BY_COUNT));
+            return entries;
+        }
+    }
+
+    /**
+     * Writes sorted (word, count) pairs to a run file
+     * 
+     */
+    private static class RunWriter {
+
+        private final DataOutputStream out;
+
+        RunWriter(File file) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+
+        void write(String word, int count) throws IOException {
+            WordCountIO.writeWord(out, word);
+            out.writeInt(count);
+        }
+
+        void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a run file one entry at a time
+     * 
+     */
+    private static class RunReader {
+
+        private final DataInputStream in;
+        String word;
+        int count;
+
+        RunReader(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+
+        /**
+         * Moves to the next entry
+         * 
+         * @return false if the run is exhausted
+         */
+        boolean advance() throws IOException {
+            try {
+                word = WordCountIO.readWord(in);
+            } catch (EOFException e) {
+                word = null;
+                return false;
+            }
+            count = in.readInt();
+            return true;
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+}
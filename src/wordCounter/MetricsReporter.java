@@ -0,0 +1,16 @@
+package wordCounter;
+
+/**
+ * Receives a snapshot of the counting engine's metrics, e.g. to print them or
+ * forward them to a monitoring system
+ */
+public interface MetricsReporter {
+
+    /**
+     * Reports the current state of the metrics
+     * 
+     * @param metrics
+     *            The metrics to report
+     */
+    public void report(CounterMetrics metrics);
+}
@@ -0,0 +1,48 @@
+package wordCounter;
+
+import java.io.File;
+
+/**
+ * Command line entry point for scripts and short files. Unlike
+ * WordCounter.main(), it takes the file as an argument and counts it once,
+ * without the benchmark harness: Swing is never started, there is no forced
+ * garbage collection, and no running time is printed. Short files are counted
+ * on the main thread; only long files use the fork/join pool. This keeps
+ * start-up time low, and the classes it loads can be stored in an AppCDS
+ * archive (see scripts/create-cds-archive.sh).
+ * 
+ * Usage: java wordCounter.QuickWordCounter file
+ */
+public class QuickWordCounter {
+
+    private QuickWordCounter() {
+    }
+
+    /**
+     * Main function
+     */
+    public static void main(String args[]) {
+        if (args.length != 1) {
+            System.out.println("Usage: java wordCounter.QuickWordCounter file");
+            System.exit(1);
+        }
+        CounterMetrics metrics = WordCounter.getMetrics();
+        if (metrics.isEnabled()) { // Starting the MBean server more than
+                                   // triples start-up time, and a run ends
+                                   // before JMX could enable metrics anyway
+            metrics.registerMBean();
+        }
+        String text = WordCounter.readFile(new File(args[0]));
+        if (text == null) {
+            System.out.println("Invalid file. Please try.");
+            System.exit(1);
+        }
+        WordCounter counter = new WordCounter();
+        counter.loadResults(WordCounter.countChunk(text));
+        System.out.println("\nSummary stats:");
+        counter.printStats();
+        if (metrics.isEnabled()) {
+            metrics.report();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package wordCounter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Two-tier cache of per-file word counts, keyed by a hash of the file's
+ * content and the tokenizer configuration. Recently used counts are kept in
+ * memory, and all counts are stored in a directory on disk so that they
+ * survive between runs. Both tiers evict the least recently used entries once
+ * they grow past their limit.
+ * 
+ * The cache also keeps a manifest of the files it has seen, with each file's
+ * size, modification time and key. If a file's size and modification time
+ * have not changed, its key is taken from the manifest, so the file does not
+ * need to be read and hashed again.
+ * 
+ * Counts returned by get() are shared with the cache and must not be modified
+ */
+public class ResultCache {
+
+    private static final String SUFFIX = ".counts";
+    // How cached files are decoded and stored. Part of every key, so changing
+    // either one retires the old entries
+    private static final String ENTRY_FORMAT = "UTF-8|length-prefixed-words";
+    private static final String MANIFEST = "manifest.txt";
+    // Files modified more recently than this are not put in the manifest, since
+    // a second change within the file system's timestamp resolution would go
+    // unnoticed
+    private static final long RACY_MILLIS = 2000;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final File directory;
+    private final long maxDiskBytes;
+    private final long maxMemoryWords;
+
+    // Both maps are in access order, so iteration starts at the least recently
+    // used entry
+    private final LinkedHashMap<String, HashMap<String, Integer>> memory = new LinkedHashMap<String, HashMap<String, Integer>>(
+            16, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private final HashMap<String, ManifestEntry> manifest = new HashMap<String, ManifestEntry>();
+    private boolean manifestChanged;
+    private long memoryWords;
+    private long diskBytes;
+
+    /**
+     * Parametered constructor. Entries already in the directory are indexed,
+     * oldest first
+     * 
+     * @param directory
+     *            Directory holding the cached counts
+     * @param maxDiskBytes
+     *            Largest total size of the cache files
+     * @param maxMemoryWords
+     *            Largest total number of words held in memory
+     * @throws RuntimeException
+     *             if the directory cannot be created
+     */
+    public ResultCache(File directory, long maxDiskBytes, long maxMemoryWords) {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new RuntimeException("Unable to create cache directory " + directory);
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxMemoryWords = maxMemoryWords;
+
+        File[] files = directory.listFiles();
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(SUFFIX)) {
+                disk.put(name.substring(0, name.length() - SUFFIX.length()), file.length());
+                diskBytes += file.length();
+            }
+        }
+        loadManifest();
+    }
+
+    /**
+     * Computes the cache key for a file's content
+     * 
+     * @param content
+     *            The file's bytes
+     * @return Hex SHA-256 of the entry format, the tokenizer configuration
+     *         and the content
+     */
+    public static String key(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ENTRY_FORMAT.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(WordCounter.TOKENIZER_CONFIGURATION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(content);
+            byte[] hash = digest.digest();
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) { // Every JVM must provide SHA-256
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Looks up counts in memory, then on disk
+     * 
+     * @param key
+     *            Cache key from key()
+     * @return The cached counts, or null if there are none
+     */
+    public synchronized HashMap<String, Integer> get(String key) {
+        HashMap<String, Integer> counts = memory.get(key);
+        if (counts != null) {
+            markUsedOnDisk(key);
+            return counts;
+        }
+        if (disk.get(key) == null)
+            return null;
+
+        File file = fileFor(key);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                counts = WordCountIO.read(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) { // Unreadable entries are treated as misses
+            removeFromDisk(key);
+            return null;
+        }
+        markUsedOnDisk(key);
+        putInMemory(key, counts);
+        return counts;
+    }
+
+    /**
+     * Stores counts in both tiers, evicting old entries if needed
+     * 
+     * @param key
+     *            Cache key from key()
+     * @param counts
+     *            Counts to cache
+     * @throws IOException
+     *             if the counts cannot be written
+     */
+    public synchronized void put(String key, HashMap<String, Integer> counts) throws IOException {
+        putInMemory(key, counts);
+
+        File file = fileFor(key);
+        File temp = new File(directory, key + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            WordCountIO.write(out, counts);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) { // Rename so readers never see half a file
+            temp.delete();
+            throw new IOException("Unable to write cache entry " + file);
+        }
+
+        Long previous = disk.put(key, file.length());
+        if (previous != null)
+            diskBytes -= previous;
+        diskBytes += file.length();
+
+        Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(key))
+                continue; // Never evict the entry just written
+            diskBytes -= entry.getValue();
+            fileFor(entry.getKey()).delete();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Looks up a file's key in the manifest
+     * 
+     * @param file
+     *            The file
+     * @param length
+     *            The file's current size
+     * @param lastModified
+     *            The file's current modification time
+     * @return The key recorded for the file, or null if the file is unknown or
+     *         has changed since
+     */
+    public synchronized String knownKey(File file, long length, long lastModified) {
+        ManifestEntry entry = manifest.get(file.getAbsolutePath());
+        if (entry == null || entry.length != length || entry.lastModified != lastModified)
+            return null;
+        return entry.key;
+    }
+
+    /**
+     * Records a file's key in the manifest. The size and modification time
+     * must be taken before the file is read, so that a change made while
+     * reading is noticed on the next run
+     * 
+     * @param file
+     *            The file
+     * @param length
+     *            The file's size when it was read
+     * @param lastModified
+     *            The file's modification time when it was read
+     * @param key
+     *            Key of the file's content
+     */
+    public synchronized void rememberKey(File file, long length, long lastModified, String key) {
+        String path = file.getAbsolutePath();
+        if (lastModified > System.currentTimeMillis() - RACY_MILLIS) {
+            manifestChanged |= manifest.remove(path) != null;
+            return;
+        }
+        manifest.put(path, new ManifestEntry(key, length, lastModified));
+        manifestChanged = true;
+    }
+
+    /**
+     * Writes the manifest to disk if it has changed, leaving out files whose
+     * counts have been evicted
+     * 
+     * @throws IOException
+     *             if the manifest cannot be written
+     */
+    public synchronized void saveManifest() throws IOException {
+        if (!manifestChanged)
+            return;
+        File temp = new File(directory, MANIFEST + ".tmp");
+        Writer writer = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(temp)),
+                StandardCharsets.UTF_8);
+        try {
+            Iterator<Map.Entry<String, ManifestEntry>> entries = manifest.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, ManifestEntry> entry = entries.next();
+                ManifestEntry value = entry.getValue();
+                if (!disk.containsKey(value.key)) {
+                    entries.remove();
+                    continue;
+                }
+                writer.write(value.key + "\t" + value.length + "\t" + value.lastModified + "\t" + entry.getKey()
+                        + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        if (!temp.renameTo(new File(directory, MANIFEST))) {
+            temp.delete();
+            throw new IOException("Unable to write cache manifest");
+        }
+        manifestChanged = false;
+    }
+
+    /**
+     * Reads the manifest written by saveManifest(). A missing or damaged
+     * manifest only means files are hashed again
+     */
+    private void loadManifest() {
+        File file = new File(directory, MANIFEST);
+        if (!file.isFile())
+            return;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                    StandardCharsets.UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t", 4);
+                    if (fields.length == 4) {
+                        manifest.put(fields[3],
+                                new ManifestEntry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            manifest.clear();
+        } catch (NumberFormatException e) {
+            manifest.clear();
+        }
+    }
+
+    public synchronized int diskEntries() {
+        return disk.size();
+    }
+
+    public synchronized int memoryEntries() {
+        return memory.size();
+    }
+
+    private void putInMemory(String key, HashMap<String, Integer> counts) {
+        HashMap<String, Integer> previous = memory.put(key, counts);
+        if (previous != null)
+            memoryWords -= previous.size();
+        memoryWords += counts.size();
+
+        Iterator<Map.Entry<String, HashMap<String, Integer>>> eldest = memory.entrySet().iterator();
+        while (memoryWords > maxMemoryWords && eldest.hasNext()) {
+            Map.Entry<String, HashMap<String, Integer>> entry = eldest.next();
+            memoryWords -= entry.getValue().size();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Moves an entry to the most recently used end of the disk tier, and
+     * updates its file's modification time so the order survives between runs
+     * 
+     * @param key
+     *            Cache key from key()
+     */
+    private void markUsedOnDisk(String key) {
+        if (disk.get(key) != null) {
+            fileFor(key).setLastModified(System.currentTimeMillis());
+        }
+    }
+
+    private void removeFromDisk(String key) {
+        Long size = disk.remove(key);
+        if (size != null)
+            diskBytes -= size;
+        fileFor(key).delete();
+    }
+
+    /**
+     * A file's key, with the size and modification time it had when read
+     * 
+     */
+    private static class ManifestEntry {
+
+        final String key;
+        final long length;
+        final long lastModified;
+
+        ManifestEntry(String key, long length, long lastModified) {
+            this.key = key;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+}
@@ -0,0 +1,376 @@
+package wordCounter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Coordinator for counting words across several worker processes on the same
+ * machine. Input files are split into byte ranges at whitespace, the ranges
+ * are handed out to {@link CountingWorker} processes over local sockets, and
+ * the partial counts that come back are merged into partitions chosen by the
+ * hash of each word.
+ * 
+ * Usage: java wordCounter.ShardedWordCounter workers file [file...]
+ */
+public class ShardedWordCounter {
+
+    public static final long DEFAULT_RANGE_BYTES = 4 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int workers;
+    private final long rangeBytes;
+    private final List<Process> processes = new ArrayList<Process>();
+    private final List<Integer> ports = new ArrayList<Integer>();
+    private ExecutorService connections;
+
+    /**
+     * Parametered constructor
+     * 
+     * @param workers
+     *            Number of worker processes to start
+     * @param rangeBytes
+     *            Approximate size of each byte range sent to a worker
+     */
+    public ShardedWordCounter(int workers, long rangeBytes) {
+        if (workers < 1)
+            throw new RuntimeException("There must be at least 1 worker");
+        if (rangeBytes < 1)
+            throw new RuntimeException("Range size must be larger than 0");
+        this.workers = workers;
+        this.rangeBytes = rangeBytes;
+    }
+
+    /**
+     * Main function
+     */
+    public static void main(String args[]) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java wordCounter.ShardedWordCounter workers file [file...]");
+            System.exit(1);
+        }
+        List<File> files = new ArrayList<File>();
+        for (int i = 1; i < args.length; i++) {
+            files.add(new File(args[i]));
+        }
+
+        ShardedWordCounter coordinator = new ShardedWordCounter(Integer.parseInt(args[0]), DEFAULT_RANGE_BYTES);
+        CounterMetrics metrics = WordCounter.getMetrics();
+        metrics.registerMBean();
+        try {
+            coordinator.start();
+            long startTime = System.nanoTime();
+            HashMap<String, Integer> words = coordinator.count(files);
+            double currentRunningTime = ((double) (System.nanoTime() - startTime)) / 1000000;
+            System.out.println("Running time: " + currentRunningTime + " ms");
+
+            WordCounter counter = new WordCounter();
+            counter.loadResults(words);
+            System.out.println("\nSummary stats:");
+            counter.printStats();
+            if (metrics.isEnabled()) {
+                metrics.report();
+            }
+        } finally {
+            coordinator.close();
+        }
+    }
+
+    /**
+     * Launches the worker processes with the same JVM and class path as this
+     * one, and waits until each is listening
+     * 
+     * @throws IOException
+     *             if a worker fails to start
+     */
+    public void start() throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classPath = System.getProperty("java.class.path");
+        for (int i = 0; i < workers; i++) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", classPath, CountingWorker.class.getName());
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            Process process = builder.start();
+            processes.add(process);
+        }
+        for (Process process : processes) {
+            ports.add(awaitReady(process));
+        }
+        connections = Executors.newFixedThreadPool(workers);
+    }
+
+    /**
+     * Stops the worker processes. Closing a worker's standard input asks it to
+     * exit; destroy() makes sure it does
+     */
+    public void close() {
+        if (connections != null) {
+            connections.shutdownNow();
+        }
+        for (Process process : processes) {
+            try {
+                process.getOutputStream().close();
+            } catch (IOException e) { // Worker has already exited
+            }
+            process.destroy();
+        }
+        for (Process process : processes) {
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        processes.clear();
+        ports.clear();
+    }
+
+    /**
+     * Counts the words in a set of files using the worker processes
+     * 
+     * @param files
+     *            Files to count
+     * @return Frequency of words across all files
+     * @throws IOException
+     *             if a file cannot be read or a worker fails
+     */
+    public HashMap<String, Integer> count(List<File> files) throws IOException {
+        if (connections == null)
+            throw new RuntimeException("Workers have not been started");
+
+        final ConcurrentLinkedQueue<Range> ranges = new ConcurrentLinkedQueue<Range>();
+        for (File file : files) {
+            ranges.addAll(splitFile(file));
+        }
+
+        int partitionCount = Runtime.getRuntime().availableProcessors();
+        final List<HashMap<String, Integer>> partitions = new ArrayList<HashMap<String, Integer>>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new HashMap<String, Integer>());
+        }
+
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        for (final int port : ports) {
+            results.add(connections.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    drainRanges(port, ranges, partitions);
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> result : results) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for workers", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Worker failed", e.getCause());
+            }
+        }
+
+        // Partitions hold disjoint sets of words, so they can simply be joined
+        HashMap<String, Integer> allResults = new HashMap<String, Integer>();
+        for (HashMap<String, Integer> partition : partitions) {
+            allResults.putAll(partition);
+        }
+        return allResults;
+    }
+
+    /**
+     * Sends ranges to one worker until there are none left, merging each
+     * partial result into the partitions
+     * 
+     * @param port
+     *            The worker's port
+     * @param ranges
+     *            Ranges still to be counted
+     * @param partitions
+     *            Merged counts, partitioned by word hash
+     * @throws IOException
+     *             if the worker connection fails
+     */
+    private void drainRanges(int port, ConcurrentLinkedQueue<Range> ranges,
+            List<HashMap<String, Integer>> partitions) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Range range;
+            while ((range = ranges.poll()) != null) {
+                out.writeUTF(range.file.getCanonicalPath());
+                out.writeLong(range.start);
+                out.writeLong(range.end);
+                out.flush();
+                mergeIntoPartitions(WordCountIO.read(in), partitions);
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Routes each word of a partial result to its partition and adds its count
+     * 
+     * @param partial
+     *            Counts returned by a worker
+     * @param partitions
+     *            Merged counts, partitioned by word hash
+     */
+    private void mergeIntoPartitions(HashMap<String, Integer> partial, List<HashMap<String, Integer>> partitions) {
+        CounterMetrics metrics = WordCounter.getMetrics();
+        boolean measure = metrics.isEnabled();
+        long startTime = measure ? System.nanoTime() : 0;
+
+        List<HashMap<String, Integer>> routed = new ArrayList<HashMap<String, Integer>>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            routed.add(new HashMap<String, Integer>());
+        }
+        for (Map.Entry<String, Integer> entry : partial.entrySet()) {
+            routed.get(partitionOf(entry.getKey(), partitions.size())).put(entry.getKey(), entry.getValue());
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            if (!routed.get(i).isEmpty()) {
+                HashMap<String, Integer> partition = partitions.get(i);
+                synchronized (partition) {
+                    WordCountIO.merge(partition, routed.get(i));
+                }
+            }
+        }
+
+        if (measure) {
+            metrics.recordPhase(CounterMetrics.Phase.MERGE, System.nanoTime() - startTime);
+        }
+    }
+
+    static int partitionOf(String word, int partitions) {
+        return (word.hashCode() & 0x7fffffff) % partitions;
+    }
+
+    /**
+     * Splits a file into ranges of roughly rangeBytes, moving each split point
+     * forward to the next whitespace byte. Whitespace bytes never occur inside
+     * a multi-byte UTF-8 character, so no word or character is cut in two
+     * 
+     * @param file
+     *            File to split
+     * @return Ranges covering the whole file
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    List<Range> splitFile(File file) throws IOException {
+        List<Range> ranges = new ArrayList<Range>();
+        RandomAccessFile reader = new RandomAccessFile(file, "r");
+        try {
+            long length = reader.length();
+            long start = 0;
+            while (start < length) {
+                long end = start + rangeBytes >= length ? length : nextWhitespace(reader, start + rangeBytes);
+                ranges.add(new Range(file, start, end));
+                start = end;
+            }
+        } finally {
+            reader.close();
+        }
+        return ranges;
+    }
+
+    /**
+     * Finds the first whitespace byte at or after a position
+     * 
+     * @param reader
+     *            Open file
+     * @param position
+     *            Position to search from
+     * @return Index of the whitespace byte, or the file length if there is none
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static long nextWhitespace(RandomAccessFile reader, long position) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        reader.seek(position);
+        int read;
+        while ((read = reader.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                if (b == ' ' || b == '\n' || b == '\r' || b == '\t')
+                    return position + i;
+            }
+            position += read;
+        }
+        return reader.length();
+    }
+
+    /**
+     * Reads the worker's "READY port" line, and discards whatever the worker
+     * prints afterwards so that it never blocks on a full pipe
+     * 
+     * @param process
+     *            The worker process
+     * @return The port the worker listens on
+     * @throws IOException
+     *             if the worker exits before it is ready
+     */
+    private static int awaitReady(Process process) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(CountingWorker.READY + " ")) {
+                Thread drain = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            while (reader.readLine() != null) {
+                            }
+                        } catch (IOException e) { // Worker has exited
+                        }
+                    }
+                });
+                drain.setDaemon(true);
+                drain.start();
+                return Integer.parseInt(line.substring(CountingWorker.READY.length() + 1).trim());
+            }
+        }
+        throw new IOException("Worker exited before it was ready");
+    }
+
+    /**
+     * A byte range of a file, from start (inclusive) to end (exclusive)
+     * 
+     */
+    static class Range {
+
+        final File file;
+        final long start;
+        final long end;
+
+        Range(File file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String toString() {
+            return file + "[" + start + ", " + end + ")";
+        }
+    }
+}
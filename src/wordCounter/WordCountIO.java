@@ -0,0 +1,110 @@
+package wordCounter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes word counts in a compact binary form: the number of
+ * entries, followed by each word and its count. Words are written as their
+ * UTF-8 length and bytes, so unlike writeUTF() there is no 64K limit
+ */
+public class WordCountIO {
+
+    private WordCountIO() {
+    }
+
+    /**
+     * Writes a frequency count of words to a stream
+     * 
+     * @param out
+     *            Destination stream
+     * @param counts
+     *            Frequency of words
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    public static void write(DataOutputStream out, Map<String, Integer> counts) throws IOException {
+        out.writeInt(counts.size());
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            writeWord(out, entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    /**
+     * Writes a word of any length as its UTF-8 length and bytes
+     * 
+     * @param out
+     *            Destination stream
+     * @param word
+     *            The word
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    public static void writeWord(DataOutputStream out, String word) throws IOException {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a word written by writeWord()
+     * 
+     * @param in
+     *            Source stream
+     * @return The word
+     * @throws IOException
+     *             if the stream cannot be read or ends early
+     */
+    public static String readWord(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            throw new IOException("Invalid word length " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a frequency count of words written by write()
+     * 
+     * @param in
+     *            Source stream
+     * @return Frequency of words
+     * @throws IOException
+     *             if the stream cannot be read, ends early or is damaged
+     */
+    public static HashMap<String, Integer> read(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0)
+            throw new IOException("Invalid entry count " + size);
+        HashMap<String, Integer> counts = new HashMap<String, Integer>(Math.max(16, size * 4 / 3 + 1));
+        for (int i = 0; i < size; i++) {
+            String word = readWord(in);
+            counts.put(word, in.readInt());
+        }
+        return counts;
+    }
+
+    /**
+     * Adds one frequency count to another
+     * 
+     * @param into
+     *            Counts to add to
+     * @param from
+     *            Counts to add
+     */
+    public static void merge(Map<String, Integer> into, Map<String, Integer> from) {
+        for (Map.Entry<String, Integer> entry : from.entrySet()) {
+            Integer count = into.get(entry.getKey());
+            if (count == null)
+                into.put(entry.getKey(), entry.getValue());
+            else
+                into.put(entry.getKey(), count + entry.getValue());
+        }
+    }
+}
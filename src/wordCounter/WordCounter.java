@@ -2,8 +2,10 @@ package wordCounter;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -20,6 +22,7 @@ import javax.swing.JFileChooser;
 
 class Globals {
     static ForkJoinPool fjPool = new ForkJoinPool();
+    static CounterMetrics metrics = new CounterMetrics();
 }
 
 /**
@@ -35,14 +38,34 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
 
     private HashMap<String, Integer> words = new HashMap<String, Integer>();
     private HashMap<Integer, Node> rankings = new HashMap<Integer, Node>();
-    private final String PUNCTUATION = "[\\[\\]\"*^$#@+|`~()&/:_{}=,.;!?<>%]";
+    private static final String PUNCTUATION = "[]\"*^$#@+|`~()&/:_{}=,.;!?<>%";
+    private static final String DIGITS = "0123456789";
+    private static final String HYPHEN_APOSTROPHE_EDGE_CASES = "-\\W|\\W-|\\W'|'\\W";
+    private static final String HYPHENS_AND_APOSTROPHES = " '|' | -|- ";
+    /**
+     * Everything that decides how text is split into words. Counts produced
+     * under a different configuration must not be reused
+     */
+    static final String TOKENIZER_CONFIGURATION = "lowercase|" + DIGITS + "|" + PUNCTUATION + "|"
+            + HYPHEN_APOSTROPHE_EDGE_CASES + "|" + HYPHENS_AND_APOSTROPHES;
+    // Character classes for ASCII characters, looked up instead of matching a
+    // regular expression one character at a time
+    private static final byte IS_DIGIT = 1;
+    private static final byte IS_PUNCTUATION = 2;
+    private static final byte[] CHARACTER_CLASSES = createCharacterClasses();
+    private static final Pattern HYPHEN_APOSTROPHE_EDGE_CASES_PATTERN = Pattern
+            .compile(HYPHEN_APOSTROPHE_EDGE_CASES);
+    private static final Pattern HYPHENS_AND_APOSTROPHES_PATTERN = Pattern.compile(HYPHENS_AND_APOSTROPHES);
     private final int REPEATS = 1;
+    private static final int MIN_SEGMENT_LENGTH = 65536;
     private String wordsToCount;
     private int segments;
     private int chunkSize;
     private boolean isParent;
     private boolean printTime = true;
     private boolean printStats = true;
+    private long segmentNanos; // Counting time of this segment, recorded
+                               // only when metrics are enabled
 
     /**
      * No-parameter constructor for initialising and unit testing
@@ -80,6 +103,8 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
      * Prompts user to select file and kicks off word counting
      */
     private void run() {
+        Globals.metrics.registerMBean(); // Registered even when disabled, so
+                                         // metrics can be enabled over JMX
         JFileChooser chooser = new JFileChooser();
         String text = openFile(chooser);
         if (text == null) {
@@ -103,6 +128,9 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
             System.out.println("\nSummary stats:");
             this.printStats();
         }
+        if (Globals.metrics.isEnabled()) {
+            Globals.metrics.report();
+        }
     }
 
     /**
@@ -116,6 +144,7 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
     public void countWords(String text, int numberOfSegments) {
         int textLength = text.length();
         int sizeOfChunk = textLength / numberOfSegments;
+        boolean measure = Globals.metrics.isEnabled();
         if (numberOfSegments == 1){
             
             this.wordsToCount = text;
@@ -123,18 +152,70 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
                 System.gc();
                 long startTime = System.nanoTime();
                 words = conductWordCounting();
-                double currentRunningTime = ((double) (System.nanoTime() - startTime)) / 1000000;
+                long elapsed = System.nanoTime() - startTime;
+                double currentRunningTime = ((double) elapsed) / 1000000;
                 if (printTime) {
                     System.out.println("Running time: " + currentRunningTime + " ms");
                 }
+                if (measure) {
+                    Globals.metrics.recordCounting(textLength, elapsed);
+                }
             }
         } else {
             for (int i = 0; i < REPEATS; i++) {
-                words = Globals.fjPool.invoke(new WordCounter(text, true, numberOfSegments, sizeOfChunk));
+                System.gc(); // Collect before the timed fork/join run
+                long startTime = System.nanoTime();
+                long stealsBefore = measure ? Globals.fjPool.getStealCount() : 0;
+                WordCounter parent = new WordCounter(text, true, numberOfSegments, sizeOfChunk);
+                parent.printTime = this.printTime;
+                words = Globals.fjPool.invoke(parent);
+                if (measure) {
+                    Globals.metrics.recordCounting(textLength, System.nanoTime() - startTime);
+                    Globals.metrics.recordSteals(Globals.fjPool.getStealCount() - stealsBefore);
+                }
             }            
         }
     }
 
+    /**
+     * Counts a chunk of text read from a file, using one segment per processor
+     * for long chunks. Line breaks are treated as spaces. Unlike countWords(),
+     * this does no benchmarking: there is no forced garbage collection and no
+     * running time is printed
+     * 
+     * @param text
+     *            Source text
+     * @return A hashMap with the frequency of words
+     */
+    static HashMap<String, Integer> countChunk(String text) {
+        text = text.replace('\n', ' ').replace('\r', ' ') + " "; // Trailing
+                                                                 // space as in
+                                                                 // openFile()
+        if (text.trim().length() == 0)
+            return new HashMap<String, Integer>();
+
+        boolean measure = Globals.metrics.isEnabled();
+        long startTime = measure ? System.nanoTime() : 0;
+        int segments = Math.max(1,
+                Math.min(Runtime.getRuntime().availableProcessors(), text.length() / MIN_SEGMENT_LENGTH));
+        HashMap<String, Integer> counts;
+        if (segments == 1) {
+            counts = new WordCounter(text, false, 1, 0).conductWordCounting();
+        } else {
+            WordCounter parent = new WordCounter(text, true, segments, text.length() / segments);
+            parent.printTime = false;
+            long stealsBefore = measure ? Globals.fjPool.getStealCount() : 0;
+            counts = Globals.fjPool.invoke(parent);
+            if (measure) {
+                Globals.metrics.recordSteals(Globals.fjPool.getStealCount() - stealsBefore);
+            }
+        }
+        if (measure) {
+            Globals.metrics.recordCounting(text.length(), System.nanoTime() - startTime);
+        }
+        return counts;
+    }
+
     /**
      * If isParent == true, kicks off child threads. If isParent != true,
      * calculates the frequency of the words, given a string of text
@@ -158,7 +239,6 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
                                                                        // counts
                                                                        // of all
                                                                        // threads
-            System.gc();
             long startTime = System.nanoTime();
 
             for (int i = 0; i < segments; i++) {
@@ -189,7 +269,22 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
                 wordCounterResultsArray[i] = wordCounterArray[i].join();
             }
 
-            return combineResults(wordCounterResultsArray);
+            if (!Globals.metrics.isEnabled()) {
+                return combineResults(wordCounterResultsArray);
+            }
+
+            long[] segmentTimes = new long[segments];
+            for (int i = 0; i < segments; i++) {
+                segmentTimes[i] = wordCounterArray[i].segmentNanos;
+            }
+            Globals.metrics.recordSegments(segmentTimes);
+
+            long allocationStart = CounterMetrics.threadAllocatedBytes();
+            long mergeStart = System.nanoTime();
+            HashMap<String, Integer> combined = combineResults(wordCounterResultsArray);
+            Globals.metrics.recordPhase(CounterMetrics.Phase.MERGE, System.nanoTime() - mergeStart);
+            Globals.metrics.recordAllocation(CounterMetrics.threadAllocatedBytes() - allocationStart);
+            return combined;
 
         } else { // Child thread
             return this.conductWordCounting();
@@ -220,9 +315,20 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
             } else { // Split text according to splitFactor
                 endPoint = startIndex + chunkSize;
 
-                while (wordsToCount.charAt(endPoint) != ' ') {
-                    endPoint--; // Decrement splitPoint until it points to a
-                                // space - ie end of a word
+                if (endPoint >= textLength) { // Earlier segments took the rest
+                    endPoint = textLength;
+                } else {
+                    while (endPoint > startIndex && wordsToCount.charAt(endPoint) != ' ') {
+                        endPoint--; // Decrement splitPoint until it points to
+                                    // a space - ie end of a word
+                    }
+                    if (endPoint == startIndex) { // No space in this chunk, so
+                                                  // end after the long word
+                        endPoint = startIndex + chunkSize;
+                        while (endPoint < textLength && wordsToCount.charAt(endPoint) != ' ') {
+                            endPoint++;
+                        }
+                    }
                 }
 
                 newText = wordsToCount.substring(startIndex, endPoint);
@@ -243,17 +349,32 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
      * @return A hashMap with the frequency of words
      */
     private HashMap<String, Integer> conductWordCounting() {
+        boolean measure = Globals.metrics.isEnabled();
+        long allocationStart = measure ? CounterMetrics.threadAllocatedBytes() : 0;
+        long startTime = measure ? System.nanoTime() : 0;
+
         HashMap<String, Integer> listingToReturn = new HashMap<String, Integer>();
         String punctuationLessText = removePunctuation(wordsToCount);
+        long normalizedTime = measure ? System.nanoTime() : 0;
         StringTokenizer tokenizer = new StringTokenizer(punctuationLessText);
+        int tokens = 0;
         while (tokenizer.hasMoreTokens()) {
             String token = tokenizer.nextToken();
+            tokens++;
             if (listingToReturn.containsKey(token))
                 listingToReturn.put(token, listingToReturn.get(token) + 1);
             else
                 listingToReturn.put(token, 1);
         }
 
+        if (measure) {
+            long endTime = System.nanoTime();
+            this.segmentNanos = endTime - startTime;
+            Globals.metrics.recordPhase(CounterMetrics.Phase.NORMALIZE, normalizedTime - startTime);
+            Globals.metrics.recordPhase(CounterMetrics.Phase.COUNT, endTime - normalizedTime);
+            Globals.metrics.recordTokens(tokens);
+            Globals.metrics.recordAllocation(CounterMetrics.threadAllocatedBytes() - allocationStart);
+        }
         return listingToReturn;
 
     }
@@ -289,7 +410,7 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
     /**
      * Prints the 25 most frequent and 25 least frequent words
      */
-    private void printStats() {
+    void printStats() {
         int numberOfDifferentWords = this.numberOfDifferentWords();
         if (numberOfDifferentWords >= 25) {
             System.out.println("\nMost frequent words:");
@@ -401,12 +522,28 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
         }
     }
 
+    /**
+     * Replaces the frequency count with one computed elsewhere (e.g. by worker
+     * processes) and ranks it
+     * 
+     * @param words
+     *            Frequency of words
+     */
+    void loadResults(HashMap<String, Integer> words) {
+        this.words = words;
+        this.rankings = new HashMap<Integer, Node>();
+        this.populateRankings();
+    }
+
     /**
      * Given a populated frequency count of words, populates a ranking hashmap
      */
-    private void populateRankings() {
+    void populateRankings() {
         if (words.size() == 0)
             return;
+        boolean measure = Globals.metrics.isEnabled();
+        long allocationStart = measure ? CounterMetrics.threadAllocatedBytes() : 0;
+        long startTime = measure ? System.nanoTime() : 0;
         ArrayList<Node> index = createNodeIndex(); // Turn frequency table into
                                                    // a reverse sorted arrayList
                                                    // of nodes (each node
@@ -417,6 +554,10 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
             this.rankings.put(rank, node);
             rank++;
         }
+        if (measure) {
+            Globals.metrics.recordPhase(CounterMetrics.Phase.RANK, System.nanoTime() - startTime);
+            Globals.metrics.recordAllocation(CounterMetrics.threadAllocatedBytes() - allocationStart);
+        }
     }
 
     /**
@@ -453,11 +594,15 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
 
         text = text.toLowerCase(); // converts into lowercase
         text = removeNumbers(text); // removes all numbers
+        if (text.length() == 0) // segment held only spaces or numbers
+            return text;
 
         if (text.charAt(0) == '\'' || text.charAt(0) == '-') { // Remove leading
                                                                // ' or - in
                                                                // string
             text = text.substring(1);
+            if (text.length() == 0)
+                return text;
         }
 
         if (text.charAt(text.length() - 1) == '\'' || text.charAt(text.length() - 1) == '-') { // Remove
@@ -470,15 +615,10 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
             text = text.substring(0, text.length() - 1);
         }
 
-        Pattern punctuation = Pattern.compile(PUNCTUATION); // removes all
-                                                            // punctuation
-                                                            // except '-' and
-                                                            // '''
-        String intermediate = punctuation.matcher(text).replaceAll(" ").trim();
-        Pattern hyphensAndApostrophesEdgeCases = Pattern.compile("-\\W|\\W-|\\W'|'\\W");
-        String intermediate2 = hyphensAndApostrophesEdgeCases.matcher(intermediate).replaceAll(" ").trim();
-        Pattern hyphensAndApostrophes = Pattern.compile(" '|' | -|- ");
-        return hyphensAndApostrophes.matcher(intermediate2).replaceAll(" ").trim();
+        // removes all punctuation except '-' and '''
+        String intermediate = replaceCharacterClass(text, IS_PUNCTUATION).trim();
+        String intermediate2 = HYPHEN_APOSTROPHE_EDGE_CASES_PATTERN.matcher(intermediate).replaceAll(" ").trim();
+        return HYPHENS_AND_APOSTROPHES_PATTERN.matcher(intermediate2).replaceAll(" ").trim();
     }
 
     /**
@@ -489,8 +629,47 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
      * @return A string without any numbers
      */
     private String removeNumbers(String text) {
-        Pattern numbers = Pattern.compile("\\d");
-        return numbers.matcher(text).replaceAll(" ").trim();
+        return replaceCharacterClass(text, IS_DIGIT).trim();
+    }
+
+    /**
+     * Takes a string, and replaces every character of the given class with an
+     * empty space
+     * 
+     * @param text
+     *            The input string
+     * @param characterClass
+     *            IS_DIGIT or IS_PUNCTUATION
+     * @return A string without any characters of that class
+     */
+    private static String replaceCharacterClass(String text, byte characterClass) {
+        char[] characters = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < CHARACTER_CLASSES.length && (CHARACTER_CLASSES[c] & characterClass) != 0) {
+                if (characters == null) { // Only copy once something changes
+                    characters = text.toCharArray();
+                }
+                characters[i] = ' ';
+            }
+        }
+        return characters == null ? text : new String(characters);
+    }
+
+    /**
+     * Builds the character class table for ASCII characters
+     * 
+     * @return Table indexed by character
+     */
+    private static byte[] createCharacterClasses() {
+        byte[] classes = new byte[128];
+        for (int i = 0; i < DIGITS.length(); i++) {
+            classes[DIGITS.charAt(i)] |= IS_DIGIT;
+        }
+        for (int i = 0; i < PUNCTUATION.length(); i++) {
+            classes[PUNCTUATION.charAt(i)] |= IS_PUNCTUATION;
+        }
+        return classes;
     }
 
     /**
@@ -511,6 +690,15 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
         return this.rankings;
     }
 
+    /**
+     * Getter for the metrics shared by all word counters
+     * 
+     * @return The engine's metrics
+     */
+    public static CounterMetrics getMetrics() {
+        return Globals.metrics;
+    }
+
     /**
      * Opens JFileChooser for user to select graph
      * 
@@ -521,40 +709,60 @@ public class WordCounter extends RecursiveTask<HashMap<String, Integer>> {
         int option = chooser.showOpenDialog(null);
 
         if (option == JFileChooser.APPROVE_OPTION) {
+            File file = chooser.getSelectedFile();
+            if (file != null)
+                return readFile(file);
+            else
+                return null;
+        } else
+            return null;
+    }
+
+    /**
+     * Reads in a whole UTF-8 text file, as the other file counters do
+     * 
+     * @param file
+     *            The file to read
+     * @return A string with the entire text, or null if it cannot be read
+     */
+    static String readFile(File file) {
+        try {
+            long startTime = System.nanoTime();
+            String fileName = file.getCanonicalPath();
+            InputStreamReader fileReader = new InputStreamReader(new FileInputStream(fileName),
+                    StandardCharsets.UTF_8);
+            BufferedReader reader = new BufferedReader(fileReader);
+            StringBuilder stringbuilder = new StringBuilder();
             try {
-                File file = chooser.getSelectedFile();
-                if (file != null) {
-                    String fileName = file.getCanonicalPath();
-                    FileReader fileReader = new FileReader(fileName);
-                    BufferedReader reader = new BufferedReader(fileReader);
-                    StringBuilder stringbuilder = new StringBuilder();
-                    try {
-                        boolean flag = true;
-                        while (flag) {
-                            String s = reader.readLine();
-                            if (s == null) { // at end of file, bufferedReader
-                                             // will return null
-                                flag = false;
-                            } else {
-                                stringbuilder.append(s);
-                            }
+                boolean flag = true;
+                while (flag) {
+                    String s = reader.readLine();
+                    if (s == null) { // at end of file, bufferedReader
+                                     // will return null
+                        flag = false;
+                    } else {
+                        if (stringbuilder.length() > 0) { // Line breaks
+                                                          // separate words
+                            stringbuilder.append(" ");
                         }
-                        stringbuilder.append(" "); // Add a space to the end of
-                                                   // the text for ease of
-                                                   // marking
-                        return stringbuilder.toString();
-                    } catch (IOException e) {
-                        return null;
-                    } finally {
-                        fileReader.close();
+                        stringbuilder.append(s);
                     }
-                } else
-                    return null;
+                }
+                stringbuilder.append(" "); // Add a space to the end of
+                                           // the text for ease of
+                                           // marking
+                if (Globals.metrics.isEnabled()) {
+                    Globals.metrics.recordPhase(CounterMetrics.Phase.READ, System.nanoTime() - startTime);
+                }
+                return stringbuilder.toString();
             } catch (IOException e) {
                 return null;
+            } finally {
+                fileReader.close();
             }
-        } else
+        } catch (IOException e) {
             return null;
+        }
     }
 
     /**